@@ -3,15 +3,21 @@ import javax.swing.table.*;
 import java.awt.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 public class TimetableGeneratorApp extends JFrame {
     private JTabbedPane tabbedPane;
 
-    // Data models
-    private TeacherTableModel teacherModel = new TeacherTableModel();
-    private SubjectTableModel subjectModel = new SubjectTableModel();
-    private ClassroomTableModel classroomModel = new ClassroomTableModel();
+    // Domain data, and the table models that mirror it
+    private DomainRepository repository = new DomainRepository();
+    private TeacherTableModel teacherModel = new TeacherTableModel(repository);
+    private SubjectTableModel subjectModel = new SubjectTableModel(repository);
+    private ClassroomTableModel classroomModel = new ClassroomTableModel(repository);
 
     public TimetableGeneratorApp() {
         setTitle("Automatic Timetable Generator");
@@ -25,7 +31,7 @@ public class TimetableGeneratorApp extends JFrame {
         tabbedPane.addTab("Teachers", new TeacherPanel(teacherModel));
         tabbedPane.addTab("Subjects", new SubjectPanel(subjectModel));
         tabbedPane.addTab("Classrooms", new ClassroomPanel(classroomModel));
-        tabbedPane.addTab("Generate", new GeneratePanel(teacherModel, subjectModel, classroomModel));
+        tabbedPane.addTab("Generate", new GeneratePanel(repository));
 
         add(tabbedPane);
     }
@@ -162,7 +168,7 @@ class TeacherPanel extends JPanel {
         JDialog dialog = new JDialog();
         dialog.setTitle("Add Teacher");
         dialog.setLayout(new GridLayout(0, 2, 5, 5));
-        dialog.setSize(400, 300);
+        dialog.setSize(400, 500);
         dialog.setModal(true);
 
         // Form components
@@ -171,6 +177,13 @@ class TeacherPanel extends JPanel {
         JList<String> subjectsList = new JList<>(allSubjectsModel);
         subjectsList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
 
+        // Soft-constraint preferences
+        Timeslot[] slots = Timeslot.teachingSlots().toArray(new Timeslot[0]);
+        JList<Timeslot> preferredList = new JList<>(slots);
+        preferredList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        JList<Timeslot> unavailableList = new JList<>(slots);
+        unavailableList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+
         // Add components to dialog
         dialog.add(new JLabel("Name:"));
         dialog.add(nameField);
@@ -178,6 +191,10 @@ class TeacherPanel extends JPanel {
         dialog.add(hoursField);
         dialog.add(new JLabel("Subjects:"));
         dialog.add(new JScrollPane(subjectsList));
+        dialog.add(new JLabel("Preferred Slots:"));
+        dialog.add(new JScrollPane(preferredList));
+        dialog.add(new JLabel("Unavailable Slots:"));
+        dialog.add(new JScrollPane(unavailableList));
 
         // Save button
         JButton saveButton = new JButton("Save");
@@ -185,6 +202,8 @@ class TeacherPanel extends JPanel {
                 nameField.getText().trim(),
                 hoursField.getText().trim(),
                 subjectsList.getSelectedValuesList(),
+                preferredList.getSelectedValuesList(),
+                unavailableList.getSelectedValuesList(),
                 dialog
         ));
 
@@ -193,7 +212,8 @@ class TeacherPanel extends JPanel {
         dialog.setVisible(true);
     }
 
-    private void saveTeacher(String name, String hoursStr, List<String> subjects, JDialog dialog) {
+    private void saveTeacher(String name, String hoursStr, List<String> subjects,
+                             List<Timeslot> preferred, List<Timeslot> unavailable, JDialog dialog) {
         try {
             if (name.isEmpty()) {
                 throw new IllegalArgumentException("Teacher name cannot be empty");
@@ -201,9 +221,12 @@ class TeacherPanel extends JPanel {
             if (subjects.isEmpty()) {
                 throw new IllegalArgumentException("Please select at least one subject");
             }
+            if (preferred.stream().anyMatch(unavailable::contains)) {
+                throw new IllegalArgumentException("A slot cannot be both preferred and unavailable");
+            }
 
             int maxHours = Integer.parseInt(hoursStr);
-            tableModel.addTeacher(new Teacher(name, subjects, maxHours));
+            tableModel.addTeacher(new Teacher(name, subjects, maxHours, preferred, unavailable));
             dialog.dispose();
 
         } catch (NumberFormatException e) {
@@ -259,6 +282,7 @@ class SubjectPanel extends JPanel {
         JTextField nameField = new JTextField();
         JTextField hoursField = new JTextField("3");
         JCheckBox labCheckbox = new JCheckBox("Requires Lab");
+        JTextField enrolmentField = new JTextField("30");
 
         dialog.add(new JLabel("Name:"));
         dialog.add(nameField);
@@ -266,6 +290,8 @@ class SubjectPanel extends JPanel {
         dialog.add(hoursField);
         dialog.add(new JLabel("Lab Requirement:"));
         dialog.add(labCheckbox);
+        dialog.add(new JLabel("Enrolment:"));
+        dialog.add(enrolmentField);
 
         JButton saveButton = new JButton("Save");
         saveButton.addActionListener(e -> {
@@ -278,11 +304,16 @@ class SubjectPanel extends JPanel {
 
                 int hours = Integer.parseInt(hoursField.getText());
                 boolean requiresLab = labCheckbox.isSelected();
+                int enrolment = Integer.parseInt(enrolmentField.getText().trim());
+                if (enrolment < 0) {
+                    JOptionPane.showMessageDialog(dialog, "Enrolment cannot be negative");
+                    return;
+                }
 
-                tableModel.addSubject(new Subject(name, hours, requiresLab));
+                tableModel.addSubject(new Subject(name, hours, requiresLab, enrolment));
                 dialog.dispose();
             } catch (NumberFormatException ex) {
-                JOptionPane.showMessageDialog(dialog, "Please enter valid weekly hours");
+                JOptionPane.showMessageDialog(dialog, "Please enter valid weekly hours and enrolment");
             }
         });
 
@@ -384,35 +415,105 @@ class ClassroomPanel extends JPanel {
 class GeneratePanel extends JPanel {
     private JTable timetableTable;
     private TimetableTableModel timetableModel = new TimetableTableModel();
-    private TeacherTableModel teacherModel;
-    private SubjectTableModel subjectModel;
-    private ClassroomTableModel classroomModel;
-
-    public GeneratePanel(TeacherTableModel tModel, SubjectTableModel sModel, ClassroomTableModel cModel) {
-        this.teacherModel = tModel;
-        this.subjectModel = sModel;
-        this.classroomModel = cModel;
+    private Map<TimetableView, EntityListModel> entityModels = new EnumMap<>(TimetableView.class);
+    private EntityListModel entityModel;
+    private boolean switchingView;
+    private JComboBox<TimetableView> viewSelector = new JComboBox<>(TimetableView.values());
+    private JList<String> entityList = new JList<>();
+    private JTextField filterField = new JTextField();
+    private JPanel entityPanel = new JPanel(new BorderLayout());
+    private JLabel scoreLabel = new JLabel();
+    private JButton generateButton = new JButton("Generate Timetable");
+    private DomainRepository repository;
+
+    public GeneratePanel(DomainRepository repository) {
+        this.repository = repository;
 
         setLayout(new BorderLayout());
 
         timetableTable = new JTable(timetableModel);
         timetableTable.setRowHeight(60);
 
+        // View selector and filterable entity list
+        viewSelector.addActionListener(e -> switchView());
+        entityList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        entityList.setPrototypeCellValue("XXXXXXXXXXXXXXXXXXXX");
+        entityList.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) showSelectedEntity();
+        });
+        filterField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { applyFilter(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { applyFilter(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { applyFilter(); }
+        });
+
+        JPanel viewPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        viewPanel.add(new JLabel("View:"));
+        viewPanel.add(viewSelector);
+
+        entityPanel.add(filterField, BorderLayout.NORTH);
+        entityPanel.add(new JScrollPane(entityList), BorderLayout.CENTER);
+        entityPanel.setVisible(false);
+
         JPanel buttonPanel = new JPanel();
-        JButton generateButton = new JButton("Generate Timetable");
         generateButton.addActionListener(e -> generateTimetable());
+        scoreLabel.setForeground(Color.white);
 
         buttonPanel.add(generateButton);
+        buttonPanel.add(scoreLabel);
         buttonPanel.setBackground(Color.blue);
 
+        add(viewPanel, BorderLayout.NORTH);
+        add(entityPanel, BorderLayout.WEST);
         add(new JScrollPane(timetableTable), BorderLayout.CENTER);
         add(buttonPanel, BorderLayout.SOUTH);
     }
 
+    private void switchView() {
+        TimetableView view = (TimetableView) viewSelector.getSelectedItem();
+        boolean perEntity = view != TimetableView.INSTITUTION;
+        entityPanel.setVisible(perEntity);
+        revalidate();
+
+        TimetableViewIndex index = timetableModel.getIndex();
+        if (index == null) return;
+
+        // Reuse the view's list model and filter, then bring back the entity it last showed
+        entityModel = entityModels.computeIfAbsent(view, v -> new EntityListModel(index, v));
+        switchingView = true;
+        entityList.setModel(entityModel);
+        filterField.setText(entityModel.getFilter());
+        switchingView = false;
+
+        int entity = perEntity ? index.lastEntity(view) : 0;
+        int position = entity < 0 ? -1 : entityModel.positionOf(entity);
+        if (position >= 0) {
+            entityList.setSelectedIndex(position);
+            entityList.ensureIndexIsVisible(position);
+        } else {
+            timetableModel.showView(view, entity);
+        }
+    }
+
+    private void applyFilter() {
+        if (switchingView || entityModel == null) return;
+        entityList.clearSelection();
+        entityModel.setFilter(filterField.getText());
+    }
+
+    private void showSelectedEntity() {
+        int position = entityList.getSelectedIndex();
+        if (position >= 0) {
+            timetableModel.showView((TimetableView) viewSelector.getSelectedItem(), entityModel.entityAt(position));
+        }
+    }
+
     private void generateTimetable() {
-        List<Teacher> teachers = teacherModel.getTeachers();
-        List<Subject> subjects = subjectModel.getSubjects();
-        List<Classroom> classrooms = classroomModel.getClassrooms();
+        // Generation works on an immutable snapshot, so the other tabs stay editable meanwhile
+        DomainSnapshot snapshot = repository.snapshot();
+        List<Teacher> teachers = snapshot.getTeachers();
+        List<Subject> subjects = snapshot.getSubjects();
+        List<Classroom> classrooms = snapshot.getClassrooms();
 
         if (teachers.isEmpty() || subjects.isEmpty() || classrooms.isEmpty()) {
             JOptionPane.showMessageDialog(this,
@@ -420,10 +521,35 @@ class GeneratePanel extends JPanel {
             return;
         }
 
-        TimetableGenerator generator = new TimetableGenerator();
-        Timetable timetable = generator.generateTimetable(teachers, subjects, classrooms);
+        generateButton.setEnabled(false);
+        scoreLabel.setText("Generating...");
+        List<SoftConstraint> constraints = SoftConstraint.defaults();
 
-        timetableModel.setTimetable(timetable);
+        new SwingWorker<CompactTimetable, Void>() {
+            private int penalty;
+
+            @Override
+            protected CompactTimetable doInBackground() {
+                TimetableGenerator generator = new TimetableGenerator();
+                CompactTimetable timetable = generator.generateCompact(teachers, subjects, classrooms, constraints);
+                penalty = new TimetableScorer(teachers, subjects, classrooms, constraints).fullScore(timetable);
+                return timetable;
+            }
+
+            @Override
+            protected void done() {
+                generateButton.setEnabled(true);
+                try {
+                    timetableModel.setTimetable(get());
+                    entityModels.clear();
+                    switchView();
+                    scoreLabel.setText("Soft-constraint penalty: " + penalty);
+                } catch (InterruptedException | ExecutionException e) {
+                    scoreLabel.setText("");
+                    JOptionPane.showMessageDialog(GeneratePanel.this, "Generation failed: " + e.getMessage());
+                }
+            }
+        }.execute();
     }
 }
 
@@ -432,32 +558,50 @@ class Teacher {
     private String name;
     private List<String> subjects;
     private int maxHoursPerDay;
+    private Set<Timeslot> preferredSlots;
+    private Set<Timeslot> unavailableSlots;
 
     public Teacher(String name, List<String> subjects, int maxHoursPerDay) {
+        this(name, subjects, maxHoursPerDay, Collections.emptySet(), Collections.emptySet());
+    }
+
+    public Teacher(String name, List<String> subjects, int maxHoursPerDay,
+                   Collection<Timeslot> preferredSlots, Collection<Timeslot> unavailableSlots) {
         this.name = name;
         this.subjects = new ArrayList<>(subjects);
         this.maxHoursPerDay = maxHoursPerDay;
+        this.preferredSlots = new HashSet<>(preferredSlots);
+        this.unavailableSlots = new HashSet<>(unavailableSlots);
     }
 
     public String getName() { return name; }
-    public List<String> getSubjects() { return subjects; }
+    public List<String> getSubjects() { return Collections.unmodifiableList(subjects); }
     public int getMaxHoursPerDay() { return maxHoursPerDay; }
+    public Set<Timeslot> getPreferredSlots() { return Collections.unmodifiableSet(preferredSlots); }
+    public Set<Timeslot> getUnavailableSlots() { return Collections.unmodifiableSet(unavailableSlots); }
 }
 
 class Subject {
     private String name;
     private int weeklyHours;
     private boolean requiresLab;
+    private int enrolment;
 
     public Subject(String name, int weeklyHours, boolean requiresLab) {
+        this(name, weeklyHours, requiresLab, 0);
+    }
+
+    public Subject(String name, int weeklyHours, boolean requiresLab, int enrolment) {
         this.name = name;
         this.weeklyHours = weeklyHours;
         this.requiresLab = requiresLab;
+        this.enrolment = enrolment;
     }
 
     public String getName() { return name; }
     public int getWeeklyHours() { return weeklyHours; }
     public boolean requiresLab() { return requiresLab; }
+    public int getEnrolment() { return enrolment; }
 }
 
 class Classroom {
@@ -479,6 +623,11 @@ class Classroom {
 enum DayOfWeek { MONDAY, TUESDAY, WEDNESDAY, THURSDAY, FRIDAY }
 
 class Timeslot {
+    public static final int PERIODS_PER_DAY = 8;
+    public static final int LUNCH_PERIOD = 5;
+    public static final int SLOT_COUNT = DayOfWeek.values().length * PERIODS_PER_DAY;
+    public static final String[] PERIOD_LABELS = {"8-9", "9-10", "10-11", "11-12", "Lunch", "1-2", "2-3", "3-4"};
+
     private DayOfWeek day;
     private int period;
 
@@ -490,6 +639,32 @@ class Timeslot {
     public DayOfWeek getDay() { return day; }
     public int getPeriod() { return period; }
 
+    // Dense 0..SLOT_COUNT-1 index used by the array-based scorer
+    public int index() { return day.ordinal() * PERIODS_PER_DAY + period - 1; }
+
+    public static Timeslot fromIndex(int index) {
+        return new Timeslot(DayOfWeek.values()[index / PERIODS_PER_DAY], index % PERIODS_PER_DAY + 1);
+    }
+
+    // All teachable slots of the week, lunch excluded
+    public static List<Timeslot> teachingSlots() {
+        List<Timeslot> slots = new ArrayList<>();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            for (int period = 1; period <= PERIODS_PER_DAY; period++) {
+                if (period != LUNCH_PERIOD) {
+                    slots.add(new Timeslot(day, period));
+                }
+            }
+        }
+        return slots;
+    }
+
+    @Override
+    public String toString() {
+        String dayName = day.name().charAt(0) + day.name().substring(1).toLowerCase();
+        return dayName + " " + PERIOD_LABELS[period - 1];
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -524,44 +699,791 @@ class TimetableEntry {
 }
 
 class Timetable {
-    private Map<Timeslot, TimetableEntry> entries = new HashMap<>();
+    // Several classes can run in the same slot, one list per slot
+    private Map<Timeslot, List<TimetableEntry>> entries = new HashMap<>();
+    private int size;
 
     public void addEntry(Teacher teacher, Classroom classroom, Timeslot slot, Subject subject) {
-        entries.put(slot, new TimetableEntry(teacher, classroom, slot, subject));
+        entries.computeIfAbsent(slot, s -> new ArrayList<>())
+                .add(new TimetableEntry(teacher, classroom, slot, subject));
+        size++;
     }
 
-    public TimetableEntry getEntry(Timeslot slot) {
-        return entries.get(slot);
+    public List<TimetableEntry> getEntries(Timeslot slot) {
+        return Collections.unmodifiableList(entries.getOrDefault(slot, Collections.emptyList()));
+    }
+
+    public Collection<TimetableEntry> getEntries() {
+        List<TimetableEntry> all = new ArrayList<>(size);
+        entries.values().forEach(all::addAll);
+        return Collections.unmodifiableList(all);
     }
 
     public boolean isTeacherAvailable(Teacher teacher, Timeslot slot) {
-        return entries.values().stream()
-                .noneMatch(e -> e.getTeacher().equals(teacher) && e.getTimeslot().equals(slot));
+        return getEntries(slot).stream().noneMatch(e -> e.getTeacher().equals(teacher));
     }
 
     public boolean isClassroomAvailable(Classroom classroom, Timeslot slot) {
-        return entries.values().stream()
-                .noneMatch(e -> e.getClassroom().equals(classroom) && e.getTimeslot().equals(slot));
+        return getEntries(slot).stream().noneMatch(e -> e.getClassroom().equals(classroom));
+    }
+}
+
+// Columnar timetable: one row per placed hour in parallel primitive arrays,
+// with entity ids pointing into the teacher/subject/classroom lists it was
+// built from (shared, never copied). Busy bitmaps give O(1) availability
+// checks and fork() is a few System.arraycopy calls, so search engines can
+// keep many candidate timetables around cheaply.
+class CompactTimetable {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final List<Teacher> teachers;
+    private final List<Subject> subjects;
+    private final List<Classroom> classrooms;
+
+    private short[] teacherIds;
+    private short[] roomIds;
+    private short[] subjectIds;
+    private byte[] slots;
+    private int size;
+
+    private final long[] teacherBusy;   // bit per Timeslot.index()
+    private final long[] roomBusy;
+
+    public CompactTimetable(List<Teacher> teachers, List<Subject> subjects, List<Classroom> classrooms) {
+        if (Timeslot.SLOT_COUNT > Long.SIZE) {
+            throw new IllegalStateException("Busy bitmaps hold at most " + Long.SIZE + " slots");
+        }
+        if (Math.max(teachers.size(), Math.max(subjects.size(), classrooms.size())) > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("At most " + Short.MAX_VALUE + " teachers, subjects or classrooms");
+        }
+        this.teachers = teachers;
+        this.subjects = subjects;
+        this.classrooms = classrooms;
+        teacherIds = new short[INITIAL_CAPACITY];
+        roomIds = new short[INITIAL_CAPACITY];
+        subjectIds = new short[INITIAL_CAPACITY];
+        slots = new byte[INITIAL_CAPACITY];
+        teacherBusy = new long[teachers.size()];
+        roomBusy = new long[classrooms.size()];
+    }
+
+    private CompactTimetable(CompactTimetable source) {
+        teachers = source.teachers;
+        subjects = source.subjects;
+        classrooms = source.classrooms;
+        size = source.size;
+        int capacity = Math.max(size, INITIAL_CAPACITY);
+        teacherIds = new short[capacity];
+        roomIds = new short[capacity];
+        subjectIds = new short[capacity];
+        slots = new byte[capacity];
+        System.arraycopy(source.teacherIds, 0, teacherIds, 0, size);
+        System.arraycopy(source.roomIds, 0, roomIds, 0, size);
+        System.arraycopy(source.subjectIds, 0, subjectIds, 0, size);
+        System.arraycopy(source.slots, 0, slots, 0, size);
+        teacherBusy = source.teacherBusy.clone();
+        roomBusy = source.roomBusy.clone();
+    }
+
+    public static CompactTimetable of(Timetable timetable, List<Teacher> teachers, List<Subject> subjects,
+                                      List<Classroom> classrooms) {
+        CompactTimetable compact = new CompactTimetable(teachers, subjects, classrooms);
+        Map<Teacher, Integer> teacherIds = idsOf(teachers);
+        Map<Subject, Integer> subjectIds = idsOf(subjects);
+        Map<Classroom, Integer> roomIds = idsOf(classrooms);
+        for (TimetableEntry entry : timetable.getEntries()) {
+            compact.add(idOf(teacherIds, entry.getTeacher()), idOf(roomIds, entry.getClassroom()),
+                    idOf(subjectIds, entry.getSubject()), entry.getTimeslot().index());
+        }
+        return compact;
+    }
+
+    private static <T> Map<T, Integer> idsOf(List<T> values) {
+        Map<T, Integer> ids = new HashMap<>();
+        for (int i = 0; i < values.size(); i++) ids.putIfAbsent(values.get(i), i);
+        return ids;
+    }
+
+    private static <T> int idOf(Map<T, Integer> ids, T value) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            throw new IllegalArgumentException("Timetable entry refers to an unknown entity");
+        }
+        return id;
+    }
+
+    public CompactTimetable fork() {
+        return new CompactTimetable(this);
+    }
+
+    public List<Teacher> getTeachers() { return teachers; }
+    public List<Subject> getSubjects() { return subjects; }
+    public List<Classroom> getClassrooms() { return classrooms; }
+
+    public int size() { return size; }
+    public int teacherAt(int row) { return teacherIds[checkRow(row)]; }
+    public int roomAt(int row) { return roomIds[checkRow(row)]; }
+    public int subjectAt(int row) { return subjectIds[checkRow(row)]; }
+    public int slotAt(int row) { return slots[checkRow(row)]; }
+
+    public boolean isTeacherAvailable(int teacher, int slot) { return (teacherBusy[teacher] & (1L << slot)) == 0; }
+    public boolean isClassroomAvailable(int room, int slot) { return (roomBusy[room] & (1L << slot)) == 0; }
+
+    // Appends an hour and returns its row
+    public int add(int teacher, int room, int subject, int slot) {
+        if (!isTeacherAvailable(teacher, slot) || !isClassroomAvailable(room, slot)) {
+            throw new IllegalStateException("Teacher or classroom already booked at " + Timeslot.fromIndex(slot));
+        }
+        if (size == slots.length) {
+            grow();
+        }
+        teacherIds[size] = (short) teacher;
+        roomIds[size] = (short) room;
+        subjectIds[size] = (short) subject;
+        slots[size] = (byte) slot;
+        book(teacher, room, slot);
+        return size++;
+    }
+
+    // Removes a row by moving the last row into its place
+    public void remove(int row) {
+        checkRow(row);
+        release(teacherIds[row], roomIds[row], slots[row]);
+        int last = --size;
+        teacherIds[row] = teacherIds[last];
+        roomIds[row] = roomIds[last];
+        subjectIds[row] = subjectIds[last];
+        slots[row] = slots[last];
+    }
+
+    public void move(int row, int room, int slot) {
+        checkRow(row);
+        int teacher = teacherIds[row];
+        release(teacher, roomIds[row], slots[row]);
+        if (!isTeacherAvailable(teacher, slot) || !isClassroomAvailable(room, slot)) {
+            book(teacher, roomIds[row], slots[row]);
+            throw new IllegalStateException("Teacher or classroom already booked at " + Timeslot.fromIndex(slot));
+        }
+        roomIds[row] = (short) room;
+        slots[row] = (byte) slot;
+        book(teacher, room, slot);
+    }
+
+    public Timetable toTimetable() {
+        Timetable timetable = new Timetable();
+        for (int row = 0; row < size; row++) {
+            timetable.addEntry(teachers.get(teacherIds[row]), classrooms.get(roomIds[row]),
+                    Timeslot.fromIndex(slots[row]), subjects.get(subjectIds[row]));
+        }
+        return timetable;
+    }
+
+    private void book(int teacher, int room, int slot) {
+        teacherBusy[teacher] |= 1L << slot;
+        roomBusy[room] |= 1L << slot;
+    }
+
+    private void release(int teacher, int room, int slot) {
+        teacherBusy[teacher] &= ~(1L << slot);
+        roomBusy[room] &= ~(1L << slot);
+    }
+
+    private void grow() {
+        int capacity = slots.length + (slots.length >> 1);
+        teacherIds = Arrays.copyOf(teacherIds, capacity);
+        roomIds = Arrays.copyOf(roomIds, capacity);
+        subjectIds = Arrays.copyOf(subjectIds, capacity);
+        slots = Arrays.copyOf(slots, capacity);
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        return row;
+    }
+}
+
+enum TimetableView {
+    INSTITUTION("Institution"), TEACHER("Teacher"), ROOM("Room"), SUBJECT("Subject");
+
+    private final String label;
+
+    TimetableView(String label) { this.label = label; }
+
+    @Override
+    public String toString() { return label; }
+}
+
+// Per-view lookups over a CompactTimetable. Each view groups row numbers by
+// entity with a counting sort (offsets + rows), built on first use and then
+// reused, so switching views or entities never rescans the whole timetable.
+class TimetableViewIndex {
+    private final CompactTimetable timetable;
+    private final int[][] offsets = new int[TimetableView.values().length][];
+    private final int[][] rows = new int[TimetableView.values().length][];
+    private final Cells[] lastCells = new Cells[TimetableView.values().length];
+    private final int[] lastEntity = new int[TimetableView.values().length];
+    private final String[][] lowerCaseNames = new String[TimetableView.values().length][];
+
+    public TimetableViewIndex(CompactTimetable timetable) {
+        this.timetable = timetable;
+    }
+
+    public CompactTimetable getTimetable() { return timetable; }
+
+    public int entityCount(TimetableView view) {
+        switch (view) {
+            case TEACHER: return timetable.getTeachers().size();
+            case ROOM: return timetable.getClassrooms().size();
+            case SUBJECT: return timetable.getSubjects().size();
+            default: return 1;
+        }
+    }
+
+    public String entityName(TimetableView view, int entity) {
+        switch (view) {
+            case TEACHER: return timetable.getTeachers().get(entity).getName();
+            case ROOM: return timetable.getClassrooms().get(entity).getRoomId();
+            case SUBJECT: return timetable.getSubjects().get(entity).getName();
+            default: return "All classes";
+        }
+    }
+
+    // Lower-cased entity names for filtering, computed once per view
+    public String[] lowerCaseNames(TimetableView view) {
+        int v = view.ordinal();
+        if (lowerCaseNames[v] == null) {
+            String[] names = new String[entityCount(view)];
+            for (int entity = 0; entity < names.length; entity++) {
+                names[entity] = entityName(view, entity).toLowerCase();
+            }
+            lowerCaseNames[v] = names;
+        }
+        return lowerCaseNames[v];
+    }
+
+    // Entity whose cells were built last in this view, or -1 if none yet
+    public int lastEntity(TimetableView view) {
+        return lastCells[view.ordinal()] != null ? lastEntity[view.ordinal()] : -1;
+    }
+
+    // One entity's rows bucketed by slot; the last result per view is kept
+    // so flipping back to a view is free
+    public Cells cells(TimetableView view, int entity) {
+        int v = view.ordinal();
+        if (entity < 0 || entity >= entityCount(view)) {
+            throw new IndexOutOfBoundsException("No " + view + " entity " + entity);
+        }
+        if (lastCells[v] != null && lastEntity[v] == entity) {
+            return lastCells[v];
+        }
+        if (offsets[v] == null) {
+            build(view);
+        }
+        int from = offsets[v][entity];
+        int to = offsets[v][entity + 1];
+
+        int[] slotOffsets = new int[Timeslot.SLOT_COUNT + 1];
+        for (int i = from; i < to; i++) {
+            slotOffsets[timetable.slotAt(rows[v][i]) + 1]++;
+        }
+        for (int slot = 0; slot < Timeslot.SLOT_COUNT; slot++) {
+            slotOffsets[slot + 1] += slotOffsets[slot];
+        }
+        int[] next = Arrays.copyOf(slotOffsets, Timeslot.SLOT_COUNT);
+        int[] slotRows = new int[to - from];
+        for (int i = from; i < to; i++) {
+            int row = rows[v][i];
+            slotRows[next[timetable.slotAt(row)]++] = row;
+        }
+        lastEntity[v] = entity;
+        return lastCells[v] = new Cells(slotOffsets, slotRows);
+    }
+
+    private void build(TimetableView view) {
+        int v = view.ordinal();
+        int[] entityOffsets = new int[entityCount(view) + 1];
+        for (int row = 0; row < timetable.size(); row++) {
+            entityOffsets[keyOf(view, row) + 1]++;
+        }
+        for (int entity = 0; entity < entityOffsets.length - 1; entity++) {
+            entityOffsets[entity + 1] += entityOffsets[entity];
+        }
+        int[] next = Arrays.copyOf(entityOffsets, entityOffsets.length - 1);
+        int[] entityRows = new int[timetable.size()];
+        for (int row = 0; row < timetable.size(); row++) {
+            entityRows[next[keyOf(view, row)]++] = row;
+        }
+        offsets[v] = entityOffsets;
+        rows[v] = entityRows;
+    }
+
+    private int keyOf(TimetableView view, int row) {
+        switch (view) {
+            case TEACHER: return timetable.teacherAt(row);
+            case ROOM: return timetable.roomAt(row);
+            case SUBJECT: return timetable.subjectAt(row);
+            default: return 0;
+        }
+    }
+
+    static class Cells {
+        private final int[] offsets;
+        private final int[] rows;
+
+        Cells(int[] offsets, int[] rows) {
+            this.offsets = offsets;
+            this.rows = rows;
+        }
+
+        int count(int slot) { return offsets[slot + 1] - offsets[slot]; }
+        int row(int slot, int i) { return rows[offsets[slot] + i]; }
+    }
+}
+
+// Room Index
+// Rooms are grouped by lab flag and sorted by capacity, with one free-room
+// bitmap per group and slot. Best fit is a binary search for the first room
+// that is large enough, then BitSet.nextSetBit on that slot's free rooms.
+class ClassroomIndex {
+    private final RoomGroup labRooms;
+    private final RoomGroup regularRooms;
+
+    public ClassroomIndex(List<Classroom> classrooms) {
+        labRooms = new RoomGroup(classrooms.stream().filter(Classroom::isLab).collect(Collectors.toList()));
+        regularRooms = new RoomGroup(classrooms.stream().filter(r -> !r.isLab()).collect(Collectors.toList()));
+    }
+
+    public boolean hasRoomFor(Subject subject) {
+        return labRooms.largestCapacity() >= subject.getEnrolment() ||
+                (!subject.requiresLab() && regularRooms.largestCapacity() >= subject.getEnrolment());
+    }
+
+    // Smallest free room that fits, or null. Lab subjects need a lab; others
+    // take a regular room first so labs stay free for lab subjects.
+    public Classroom bestFit(Subject subject, Timeslot slot) {
+        Classroom room = subject.requiresLab() ? null : regularRooms.bestFit(subject.getEnrolment(), slot.index());
+        return room != null ? room : labRooms.bestFit(subject.getEnrolment(), slot.index());
+    }
+
+    public void occupy(Classroom classroom, Timeslot slot) {
+        groupOf(classroom).setFree(classroom, slot.index(), false);
+    }
+
+    private RoomGroup groupOf(Classroom classroom) {
+        return classroom.isLab() ? labRooms : regularRooms;
+    }
+
+    private static class RoomGroup {
+        private final Classroom[] rooms;
+        private final int[] capacities;
+        private final BitSet[] freeRooms = new BitSet[Timeslot.SLOT_COUNT];
+        private final Map<Classroom, Integer> positions = new HashMap<>();
+
+        RoomGroup(List<Classroom> classrooms) {
+            rooms = classrooms.toArray(new Classroom[0]);
+            Arrays.sort(rooms, Comparator.comparingInt(Classroom::getCapacity));
+            capacities = new int[rooms.length];
+            for (int i = 0; i < rooms.length; i++) {
+                capacities[i] = rooms[i].getCapacity();
+                positions.put(rooms[i], i);
+            }
+            for (int slot = 0; slot < freeRooms.length; slot++) {
+                freeRooms[slot] = new BitSet(rooms.length);
+                freeRooms[slot].set(0, rooms.length);
+            }
+        }
+
+        int largestCapacity() {
+            return rooms.length == 0 ? -1 : capacities[rooms.length - 1];
+        }
+
+        Classroom bestFit(int enrolment, int slot) {
+            int position = freeRooms[slot].nextSetBit(firstFitting(enrolment));
+            return position >= 0 ? rooms[position] : null;
+        }
+
+        void setFree(Classroom classroom, int slot, boolean free) {
+            Integer position = positions.get(classroom);
+            if (position == null) {
+                throw new IllegalArgumentException("Unknown classroom: " + classroom.getRoomId());
+            }
+            freeRooms[slot].set(position, free);
+        }
+
+        // Lower bound: first position whose capacity is at least the enrolment
+        private int firstFitting(int enrolment) {
+            int low = 0;
+            int high = capacities.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (capacities[mid] < enrolment) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+    }
+}
+
+// Soft Constraints
+enum SoftConstraintType {
+    TEACHER_PREFERRED_SLOTS,    // per hour placed outside a teacher's preferred slots
+    TEACHER_UNAVAILABLE_SLOTS,  // per hour placed in a teacher's unavailable slot
+    NO_BACK_TO_BACK_LABS,       // per pair of adjacent lab hours taught by one teacher
+    SUBJECT_SPREAD,             // per extra hour of a subject on the same day
+    ROOM_STABILITY              // per extra room a subject is taught in
+}
+
+class SoftConstraint {
+    private SoftConstraintType type;
+    private int weight;
+
+    public SoftConstraint(SoftConstraintType type, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Constraint weight cannot be negative");
+        }
+        this.type = type;
+        this.weight = weight;
+    }
+
+    public SoftConstraintType getType() { return type; }
+    public int getWeight() { return weight; }
+
+    public static List<SoftConstraint> defaults() {
+        return Arrays.asList(
+                new SoftConstraint(SoftConstraintType.TEACHER_UNAVAILABLE_SLOTS, 100),
+                new SoftConstraint(SoftConstraintType.NO_BACK_TO_BACK_LABS, 10),
+                new SoftConstraint(SoftConstraintType.TEACHER_PREFERRED_SLOTS, 5),
+                new SoftConstraint(SoftConstraintType.SUBJECT_SPREAD, 3),
+                new SoftConstraint(SoftConstraintType.ROOM_STABILITY, 2));
+    }
+}
+
+// Weighted penalty scorer. Constraints are compiled once into flat int arrays
+// indexed by entity id and Timeslot.index(), so full and delta scores never
+// allocate. Lower is better; 0 means every soft constraint is satisfied.
+class TimetableScorer {
+    private static final int DAYS = DayOfWeek.values().length;
+    private static final int SLOTS = Timeslot.SLOT_COUNT;
+    private static final int PERIODS = Timeslot.PERIODS_PER_DAY;
+
+    private final List<Teacher> teachers;
+    private final List<Subject> subjects;
+    private final List<Classroom> classrooms;
+    private final Map<Teacher, Integer> teacherIds = new HashMap<>();
+    private final Map<Subject, Integer> subjectIds = new HashMap<>();
+    private final Map<Classroom, Integer> roomIds = new HashMap<>();
+
+    // Compiled constraints
+    private final int roomCount;
+    private final int[] teacherSlotCost;    // [teacher * SLOTS + slot]
+    private final boolean[] subjectLab;
+    private int labWeight;
+    private int spreadWeight;
+    private int roomWeight;
+
+    // Incremental state
+    private final int[] teacherLabCount;    // [teacher * SLOTS + slot]
+    private final int[] subjectDayCount;    // [subject * DAYS + day]
+    private final int[] subjectRoomCount;   // [subject * roomCount + room]
+    private final int[] subjectRoomsUsed;
+    private int score;
+
+    public TimetableScorer(List<Teacher> teachers, List<Subject> subjects, List<Classroom> classrooms,
+                           List<SoftConstraint> constraints) {
+        this.teachers = teachers;
+        this.subjects = subjects;
+        this.classrooms = classrooms;
+        for (int i = 0; i < teachers.size(); i++) teacherIds.put(teachers.get(i), i);
+        for (int i = 0; i < subjects.size(); i++) subjectIds.put(subjects.get(i), i);
+        for (int i = 0; i < classrooms.size(); i++) roomIds.put(classrooms.get(i), i);
+        roomCount = classrooms.size();
+
+        int preferredWeight = 0;
+        int unavailableWeight = 0;
+        for (SoftConstraint constraint : constraints) {
+            switch (constraint.getType()) {
+                case TEACHER_PREFERRED_SLOTS: preferredWeight += constraint.getWeight(); break;
+                case TEACHER_UNAVAILABLE_SLOTS: unavailableWeight += constraint.getWeight(); break;
+                case NO_BACK_TO_BACK_LABS: labWeight += constraint.getWeight(); break;
+                case SUBJECT_SPREAD: spreadWeight += constraint.getWeight(); break;
+                case ROOM_STABILITY: roomWeight += constraint.getWeight(); break;
+            }
+        }
+
+        teacherSlotCost = new int[teachers.size() * SLOTS];
+        for (int t = 0; t < teachers.size(); t++) {
+            Teacher teacher = teachers.get(t);
+            boolean hasPreferences = !teacher.getPreferredSlots().isEmpty();
+            for (int slot = 0; slot < SLOTS; slot++) {
+                Timeslot timeslot = Timeslot.fromIndex(slot);
+                int cost = 0;
+                if (hasPreferences && !teacher.getPreferredSlots().contains(timeslot)) cost += preferredWeight;
+                if (teacher.getUnavailableSlots().contains(timeslot)) cost += unavailableWeight;
+                teacherSlotCost[t * SLOTS + slot] = cost;
+            }
+        }
+
+        subjectLab = new boolean[subjects.size()];
+        for (int s = 0; s < subjects.size(); s++) subjectLab[s] = subjects.get(s).requiresLab();
+
+        teacherLabCount = new int[teachers.size() * SLOTS];
+        subjectDayCount = new int[subjects.size() * DAYS];
+        subjectRoomCount = new int[subjects.size() * roomCount];
+        subjectRoomsUsed = new int[subjects.size()];
+    }
+
+    public int teacherId(Teacher teacher) { return idOf(teacherIds, teacher, "teacher"); }
+    public int subjectId(Subject subject) { return idOf(subjectIds, subject, "subject"); }
+    public int roomId(Classroom classroom) { return idOf(roomIds, classroom, "classroom"); }
+
+    private static <T> int idOf(Map<T, Integer> ids, T value, String kind) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            throw new IllegalArgumentException("Unknown " + kind + " for this scorer");
+        }
+        return id;
+    }
+
+    public int score() { return score; }
+
+    public void reset() {
+        Arrays.fill(teacherLabCount, 0);
+        Arrays.fill(subjectDayCount, 0);
+        Arrays.fill(subjectRoomCount, 0);
+        Arrays.fill(subjectRoomsUsed, 0);
+        score = 0;
+    }
+
+    // Full score: rebuilds the state from scratch
+    public int fullScore(Timetable timetable) {
+        reset();
+        for (TimetableEntry entry : timetable.getEntries()) {
+            assign(teacherId(entry.getTeacher()), subjectId(entry.getSubject()),
+                    roomId(entry.getClassroom()), entry.getTimeslot().index());
+        }
+        return score;
+    }
+
+    // Full score straight from the id columns; the timetable must share this scorer's entity lists
+    public int fullScore(CompactTimetable timetable) {
+        if (timetable.getTeachers() != teachers || timetable.getSubjects() != subjects ||
+                timetable.getClassrooms() != classrooms) {
+            throw new IllegalArgumentException("Timetable was built from different entity lists");
+        }
+        reset();
+        for (int row = 0; row < timetable.size(); row++) {
+            assign(timetable.teacherAt(row), timetable.subjectAt(row), timetable.roomAt(row), timetable.slotAt(row));
+        }
+        return score;
+    }
+
+    // Cost of placing an hour, without changing the state
+    public int assignDelta(int teacher, int subject, int room, int slot) {
+        int delta = teacherSlotCost[teacher * SLOTS + slot];
+        if (subjectLab[subject]) {
+            delta += labWeight * adjacentLabs(teacher, slot);
+        }
+        if (subjectDayCount[subject * DAYS + slot / PERIODS] > 0) {
+            delta += spreadWeight;
+        }
+        if (subjectRoomCount[subject * roomCount + room] == 0 && subjectRoomsUsed[subject] > 0) {
+            delta += roomWeight;
+        }
+        return delta;
+    }
+
+    public int assign(int teacher, int subject, int room, int slot) {
+        int delta = assignDelta(teacher, subject, room, slot);
+        if (subjectLab[subject]) teacherLabCount[teacher * SLOTS + slot]++;
+        subjectDayCount[subject * DAYS + slot / PERIODS]++;
+        if (subjectRoomCount[subject * roomCount + room]++ == 0) subjectRoomsUsed[subject]++;
+        score += delta;
+        return delta;
+    }
+
+    public int unassign(int teacher, int subject, int room, int slot) {
+        if (subjectLab[subject]) teacherLabCount[teacher * SLOTS + slot]--;
+        subjectDayCount[subject * DAYS + slot / PERIODS]--;
+        if (--subjectRoomCount[subject * roomCount + room] == 0) subjectRoomsUsed[subject]--;
+        int delta = -assignDelta(teacher, subject, room, slot);
+        score += delta;
+        return delta;
+    }
+
+    // Cost of moving a placed hour to another room/slot, without changing the state
+    public int moveDelta(int teacher, int subject, int room, int slot, int newRoom, int newSlot) {
+        int delta = unassign(teacher, subject, room, slot) + assignDelta(teacher, subject, newRoom, newSlot);
+        assign(teacher, subject, room, slot);
+        return delta;
+    }
+
+    private int adjacentLabs(int teacher, int slot) {
+        int period = slot % PERIODS;
+        int base = teacher * SLOTS + slot;
+        int count = 0;
+        if (period > 0) count += teacherLabCount[base - 1];
+        if (period < PERIODS - 1) count += teacherLabCount[base + 1];
+        return count;
+    }
+}
+
+// Domain Repository
+// Immutable point-in-time view of the domain data. Safe to hand to any thread.
+class DomainSnapshot {
+    private final long version;
+    private final List<Teacher> teachers;
+    private final List<Subject> subjects;
+    private final List<Classroom> classrooms;
+
+    public DomainSnapshot(long version, List<Teacher> teachers, List<Subject> subjects, List<Classroom> classrooms) {
+        this.version = version;
+        this.teachers = Collections.unmodifiableList(new ArrayList<>(teachers));
+        this.subjects = Collections.unmodifiableList(new ArrayList<>(subjects));
+        this.classrooms = Collections.unmodifiableList(new ArrayList<>(classrooms));
+    }
+
+    // Copy-on-write helpers: only the changed list is rebuilt, the others are shared
+    private DomainSnapshot(long version, DomainSnapshot base, List<Teacher> teachers, List<Subject> subjects,
+                           List<Classroom> classrooms) {
+        this.version = version;
+        this.teachers = teachers != null ? Collections.unmodifiableList(teachers) : base.teachers;
+        this.subjects = subjects != null ? Collections.unmodifiableList(subjects) : base.subjects;
+        this.classrooms = classrooms != null ? Collections.unmodifiableList(classrooms) : base.classrooms;
+    }
+
+    public long getVersion() { return version; }
+    public List<Teacher> getTeachers() { return teachers; }
+    public List<Subject> getSubjects() { return subjects; }
+    public List<Classroom> getClassrooms() { return classrooms; }
+
+    DomainSnapshot withTeachers(List<Teacher> teachers) {
+        return new DomainSnapshot(version + 1, this, teachers, null, null);
+    }
+
+    DomainSnapshot withSubjects(List<Subject> subjects) {
+        return new DomainSnapshot(version + 1, this, null, subjects, null);
+    }
+
+    DomainSnapshot withClassrooms(List<Classroom> classrooms) {
+        return new DomainSnapshot(version + 1, this, null, null, classrooms);
+    }
+}
+
+class DomainChangeEvent extends EventObject {
+    private final DomainSnapshot snapshot;
+
+    public DomainChangeEvent(DomainRepository source, DomainSnapshot snapshot) {
+        super(source);
+        this.snapshot = snapshot;
+    }
+
+    public DomainSnapshot getSnapshot() { return snapshot; }
+}
+
+interface DomainListener extends EventListener {
+    void domainChanged(DomainChangeEvent event);
+}
+
+// Holds the current DomainSnapshot. Writers swap in a new version with a
+// compare-and-set, so readers never lock and never see a half-applied edit.
+// Listeners are notified on the Swing thread, once per batch: every edit made
+// before the pending notification runs is folded into a single event.
+class DomainRepository {
+    private final AtomicReference<DomainSnapshot> current = new AtomicReference<>(
+            new DomainSnapshot(0, Collections.emptyList(), Collections.emptyList(), Collections.emptyList()));
+    private final List<DomainListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean dispatchPending = new AtomicBoolean();
+    private long dispatchedVersion;
+
+    public DomainSnapshot snapshot() { return current.get(); }
+
+    public void addListener(DomainListener listener) { listeners.add(listener); }
+    public void removeListener(DomainListener listener) { listeners.remove(listener); }
+
+    public void addTeacher(Teacher teacher) {
+        update(s -> s.withTeachers(added(s.getTeachers(), teacher)));
+    }
+
+    public void removeTeacher(Teacher teacher) {
+        update(s -> s.withTeachers(removed(s.getTeachers(), teacher)));
+    }
+
+    public void addSubject(Subject subject) {
+        update(s -> s.withSubjects(added(s.getSubjects(), subject)));
+    }
+
+    public void removeSubject(Subject subject) {
+        update(s -> s.withSubjects(removed(s.getSubjects(), subject)));
+    }
+
+    public void addClassroom(Classroom classroom) {
+        update(s -> s.withClassrooms(added(s.getClassrooms(), classroom)));
+    }
+
+    public void removeClassroom(Classroom classroom) {
+        update(s -> s.withClassrooms(removed(s.getClassrooms(), classroom)));
+    }
+
+    private void update(UnaryOperator<DomainSnapshot> change) {
+        current.updateAndGet(change);
+        if (dispatchPending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::dispatch);
+        }
+    }
+
+    private void dispatch() {
+        dispatchPending.set(false);
+        DomainSnapshot snapshot = current.get();
+        if (snapshot.getVersion() == dispatchedVersion) return;
+
+        DomainChangeEvent event = new DomainChangeEvent(this, snapshot);
+        dispatchedVersion = snapshot.getVersion();
+        for (DomainListener listener : listeners) {
+            listener.domainChanged(event);
+        }
+    }
+
+    private static <T> List<T> added(List<T> list, T value) {
+        List<T> copy = new ArrayList<>(list.size() + 1);
+        copy.addAll(list);
+        copy.add(value);
+        return copy;
+    }
+
+    private static <T> List<T> removed(List<T> list, T value) {
+        List<T> copy = new ArrayList<>(list);
+        copy.remove(value);
+        return copy;
     }
 }
 
 // Table Models
 class TeacherTableModel extends AbstractTableModel {
-    private List<Teacher> teachers = new ArrayList<>();
-    private String[] columns = {"Name", "Subjects", "Max Hours/Day"};
+    private DomainRepository repository;
+    private List<Teacher> teachers;
+    private String[] columns = {"Name", "Subjects", "Max Hours/Day", "Preferences"};
+
+    public TeacherTableModel(DomainRepository repository) {
+        this.repository = repository;
+        this.teachers = repository.snapshot().getTeachers();
+        repository.addListener(e -> {
+            if (e.getSnapshot().getTeachers() != teachers) {
+                teachers = e.getSnapshot().getTeachers();
+                fireTableDataChanged();
+            }
+        });
+    }
 
     public void addTeacher(Teacher teacher) {
-        teachers.add(teacher);
-        fireTableRowsInserted(teachers.size()-1, teachers.size()-1);
+        repository.addTeacher(teacher);
     }
 
     public void removeTeacher(int row) {
-        teachers.remove(row);
-        fireTableRowsDeleted(row, row);
+        repository.removeTeacher(teachers.get(row));
     }
 
-    public List<Teacher> getTeachers() { return teachers; }
-
     @Override public int getRowCount() { return teachers.size(); }
     @Override public int getColumnCount() { return columns.length; }
     @Override public String getColumnName(int column) { return columns[column]; }
@@ -573,27 +1495,37 @@ class TeacherTableModel extends AbstractTableModel {
             case 0: return teacher.getName();
             case 1: return String.join(", ", teacher.getSubjects());
             case 2: return teacher.getMaxHoursPerDay();
+            case 3: return String.format("%d preferred, %d unavailable",
+                    teacher.getPreferredSlots().size(), teacher.getUnavailableSlots().size());
             default: return null;
         }
     }
 }
 
 class SubjectTableModel extends AbstractTableModel {
-    private List<Subject> subjects = new ArrayList<>();
-    private String[] columns = {"Name", "Weekly Hours", "Requires Lab"};
+    private DomainRepository repository;
+    private List<Subject> subjects;
+    private String[] columns = {"Name", "Weekly Hours", "Requires Lab", "Enrolment"};
+
+    public SubjectTableModel(DomainRepository repository) {
+        this.repository = repository;
+        this.subjects = repository.snapshot().getSubjects();
+        repository.addListener(e -> {
+            if (e.getSnapshot().getSubjects() != subjects) {
+                subjects = e.getSnapshot().getSubjects();
+                fireTableDataChanged();
+            }
+        });
+    }
 
     public void addSubject(Subject subject) {
-        subjects.add(subject);
-        fireTableRowsInserted(subjects.size()-1, subjects.size()-1);
+        repository.addSubject(subject);
     }
 
     public void removeSubject(int row) {
-        subjects.remove(row);
-        fireTableRowsDeleted(row, row);
+        repository.removeSubject(subjects.get(row));
     }
 
-    public List<Subject> getSubjects() { return subjects; }
-
     @Override public int getRowCount() { return subjects.size(); }
     @Override public int getColumnCount() { return columns.length; }
     @Override public String getColumnName(int column) { return columns[column]; }
@@ -605,27 +1537,36 @@ class SubjectTableModel extends AbstractTableModel {
             case 0: return subject.getName();
             case 1: return subject.getWeeklyHours();
             case 2: return subject.requiresLab() ? "Yes" : "No";
+            case 3: return subject.getEnrolment();
             default: return null;
         }
     }
 }
 
 class ClassroomTableModel extends AbstractTableModel {
-    private List<Classroom> classrooms = new ArrayList<>();
+    private DomainRepository repository;
+    private List<Classroom> classrooms;
     private String[] columns = {"Room ID", "Is Lab", "Capacity"};
 
+    public ClassroomTableModel(DomainRepository repository) {
+        this.repository = repository;
+        this.classrooms = repository.snapshot().getClassrooms();
+        repository.addListener(e -> {
+            if (e.getSnapshot().getClassrooms() != classrooms) {
+                classrooms = e.getSnapshot().getClassrooms();
+                fireTableDataChanged();
+            }
+        });
+    }
+
     public void addClassroom(Classroom classroom) {
-        classrooms.add(classroom);
-        fireTableRowsInserted(classrooms.size()-1, classrooms.size()-1);
+        repository.addClassroom(classroom);
     }
 
     public void removeClassroom(int row) {
-        classrooms.remove(row);
-        fireTableRowsDeleted(row, row);
+        repository.removeClassroom(classrooms.get(row));
     }
 
-    public List<Classroom> getClassrooms() { return classrooms; }
-
     @Override public int getRowCount() { return classrooms.size(); }
     @Override public int getColumnCount() { return columns.length; }
     @Override public String getColumnName(int column) { return columns[column]; }
@@ -643,12 +1584,25 @@ class ClassroomTableModel extends AbstractTableModel {
 }
 
 class TimetableTableModel extends AbstractTableModel {
-    private Timetable timetable;
+    private static final int MAX_LINES_PER_CELL = 3;
+
+    private TimetableViewIndex index;
+    private TimetableViewIndex.Cells cells;
     private String[] days = {"Monday", "Tuesday", "Wednesday", "Thursday", "Friday"};
-    private String[] periods = {"8-9", "9-10", "10-11", "11-12", "Lunch", "1-2", "2-3", "3-4"};
+    private String[] periods = Timeslot.PERIOD_LABELS;
 
-    public void setTimetable(Timetable timetable) {
-        this.timetable = timetable;
+    public void setTimetable(CompactTimetable timetable) {
+        this.index = new TimetableViewIndex(timetable);
+        this.cells = index.cells(TimetableView.INSTITUTION, 0);
+        fireTableDataChanged();
+    }
+
+    public TimetableViewIndex getIndex() { return index; }
+
+    // Switches to one entity's schedule; a negative entity clears the grid
+    public void showView(TimetableView view, int entity) {
+        if (index == null) return;
+        cells = entity < 0 ? null : index.cells(view, entity);
         fireTableDataChanged();
     }
 
@@ -659,35 +1613,112 @@ class TimetableTableModel extends AbstractTableModel {
     @Override
     public Object getValueAt(int row, int column) {
         if (column == 0) return periods[row];
-        if (timetable == null) return "";
+        if (cells == null) return "";
+
+        int slot = new Timeslot(DayOfWeek.values()[column-1], row+1).index();
+        int count = cells.count(slot);
+        if (count == 0) return "";
+
+        CompactTimetable timetable = index.getTimetable();
+        if (count == 1) {
+            int entry = cells.row(slot, 0);
+            return String.format("<html>%s<br>%s<br>%s</html>",
+                    timetable.getSubjects().get(timetable.subjectAt(entry)).getName(),
+                    timetable.getTeachers().get(timetable.teacherAt(entry)).getName(),
+                    timetable.getClassrooms().get(timetable.roomAt(entry)).getRoomId());
+        }
 
-        Timeslot slot = new Timeslot(DayOfWeek.values()[column-1], row+1);
-        TimetableEntry entry = timetable.getEntry(slot);
+        // Concurrent classes: one line each, capped so large slots stay cheap to render
+        StringBuilder html = new StringBuilder("<html>");
+        for (int i = 0; i < Math.min(count, MAX_LINES_PER_CELL); i++) {
+            int entry = cells.row(slot, i);
+            html.append(timetable.getSubjects().get(timetable.subjectAt(entry)).getName()).append(" - ")
+                    .append(timetable.getTeachers().get(timetable.teacherAt(entry)).getName()).append(" - ")
+                    .append(timetable.getClassrooms().get(timetable.roomAt(entry)).getRoomId()).append("<br>");
+        }
+        if (count > MAX_LINES_PER_CELL) {
+            html.append("+").append(count - MAX_LINES_PER_CELL).append(" more");
+        }
+        return html.append("</html>").toString();
+    }
+}
 
-        return entry != null ?
-                String.format("<html>%s<br>%s<br>%s</html>",
-                        entry.getSubject().getName(),
-                        entry.getTeacher().getName(),
-                        entry.getClassroom().getRoomId()) :
-                "";
+// Entity names of one view, narrowed by a substring filter. Only the matching
+// positions are stored; the JList paints just the rows in its viewport. One
+// model is kept per view so switching back keeps its filter and matches.
+class EntityListModel extends AbstractListModel<String> {
+    private final TimetableViewIndex index;
+    private final TimetableView view;
+    private final String[] lowerCaseNames;
+    private final int[] matches;
+    private int matchCount;
+    private String filter;
+    private String needle;
+
+    public EntityListModel(TimetableViewIndex index, TimetableView view) {
+        this.index = index;
+        this.view = view;
+        this.lowerCaseNames = index.lowerCaseNames(view);
+        this.matches = new int[lowerCaseNames.length];
+        setFilter("");
     }
+
+    public String getFilter() { return filter; }
+
+    public void setFilter(String filter) {
+        this.filter = filter;
+        String needle = filter.trim().toLowerCase();
+        if (needle.equals(this.needle)) return;
+        this.needle = needle;
+        int previousCount = matchCount;
+        matchCount = 0;
+        for (int entity = 0; entity < lowerCaseNames.length; entity++) {
+            if (needle.isEmpty() || lowerCaseNames[entity].contains(needle)) {
+                matches[matchCount++] = entity;
+            }
+        }
+        int common = Math.min(previousCount, matchCount);
+        if (common > 0) {
+            fireContentsChanged(this, 0, common - 1);
+        }
+        if (matchCount < previousCount) {
+            fireIntervalRemoved(this, matchCount, previousCount - 1);
+        } else if (matchCount > previousCount) {
+            fireIntervalAdded(this, previousCount, matchCount - 1);
+        }
+    }
+
+    public int entityAt(int position) { return matches[position]; }
+
+    // List position of an entity, or -1 if the filter hides it
+    public int positionOf(int entity) {
+        int position = Arrays.binarySearch(matches, 0, matchCount, entity);
+        return position >= 0 ? position : -1;
+    }
+
+    @Override public int getSize() { return matchCount; }
+    @Override public String getElementAt(int position) { return index.entityName(view, matches[position]); }
 }
 
 // Timetable Generator Algorithm
 class TimetableGenerator {
     public Timetable generateTimetable(List<Teacher> teachers, List<Subject> subjects, List<Classroom> classrooms) {
-        Timetable timetable = new Timetable();
-        Random random = new Random();
+        return generateTimetable(teachers, subjects, classrooms, SoftConstraint.defaults());
+    }
+
+    public Timetable generateTimetable(List<Teacher> teachers, List<Subject> subjects, List<Classroom> classrooms,
+                                       List<SoftConstraint> constraints) {
+        return generateCompact(teachers, subjects, classrooms, constraints).toTimetable();
+    }
+
+    public CompactTimetable generateCompact(List<Teacher> teachers, List<Subject> subjects,
+                                            List<Classroom> classrooms, List<SoftConstraint> constraints) {
+        CompactTimetable timetable = new CompactTimetable(teachers, subjects, classrooms);
+        TimetableScorer scorer = new TimetableScorer(teachers, subjects, classrooms, constraints);
+        ClassroomIndex roomIndex = new ClassroomIndex(classrooms);
 
         // Create a list of all possible timeslots
-        List<Timeslot> allTimeslots = new ArrayList<>();
-        for (DayOfWeek day : DayOfWeek.values()) {
-            for (int period = 1; period <= 8; period++) {
-                if (period != 5) { // Skip lunch period
-                    allTimeslots.add(new Timeslot(day, period));
-                }
-            }
-        }
+        List<Timeslot> allTimeslots = Timeslot.teachingSlots();
 
         // Try to schedule each subject for its required hours
         for (Subject subject : subjects) {
@@ -703,49 +1734,125 @@ class TimetableGenerator {
                 continue;
             }
 
-            // Get suitable classrooms
-            List<Classroom> suitableRooms = classrooms.stream()
-                    .filter(r -> !subject.requiresLab() || r.isLab())
-                    .collect(Collectors.toList());
-
-            if (suitableRooms.isEmpty()) {
+            // Rooms are matched per slot by best fit on lab flag and capacity
+            if (!roomIndex.hasRoomFor(subject)) {
                 System.out.println("No suitable room for: " + subject.getName());
                 continue;
             }
 
+            int subjectId = scorer.subjectId(subject);
+
             // Try to schedule required hours
             while (hoursScheduled < subject.getWeeklyHours()) {
-                boolean scheduled = false;
+                Teacher bestTeacher = null;
+                Classroom bestRoom = null;
+                Timeslot bestSlot = null;
+                int bestCost = Integer.MAX_VALUE;
 
-                // Shuffle to try different combinations
+                // Shuffle to try different combinations; ties keep the first candidate found
                 Collections.shuffle(qualifiedTeachers);
-                Collections.shuffle(suitableRooms);
                 Collections.shuffle(allTimeslots);
 
+                search:
                 for (Teacher teacher : qualifiedTeachers) {
-                    for (Classroom room : suitableRooms) {
-                        for (Timeslot slot : allTimeslots) {
-                            if (timetable.isTeacherAvailable(teacher, slot) &&
-                                    timetable.isClassroomAvailable(room, slot)) {
-
-                                timetable.addEntry(teacher, room, slot, subject);
-                                hoursScheduled++;
-                                scheduled = true;
-                                break;
-                            }
+                    int teacherId = scorer.teacherId(teacher);
+                    for (Timeslot slot : allTimeslots) {
+                        if (!timetable.isTeacherAvailable(teacherId, slot.index())) {
+                            continue;
+                        }
+                        // The room index is the only source of room availability while generating
+                        Classroom room = roomIndex.bestFit(subject, slot);
+                        if (room == null) {
+                            continue;
+                        }
+
+                        int cost = scorer.assignDelta(teacherId, subjectId, scorer.roomId(room), slot.index());
+                        if (cost < bestCost) {
+                            bestTeacher = teacher;
+                            bestRoom = room;
+                            bestSlot = slot;
+                            bestCost = cost;
+                            if (cost == 0) break search;
                         }
-                        if (scheduled) break;
                     }
-                    if (scheduled) break;
                 }
 
-                if (!scheduled) {
+                if (bestSlot == null) {
                     System.out.println("Could not schedule all hours for: " + subject.getName());
                     break;
                 }
+
+                int teacherId = scorer.teacherId(bestTeacher);
+                int roomId = scorer.roomId(bestRoom);
+                timetable.add(teacherId, roomId, subjectId, bestSlot.index());
+                roomIndex.occupy(bestRoom, bestSlot);
+                scorer.assign(teacherId, subjectId, roomId, bestSlot.index());
+                hoursScheduled++;
             }
         }
 
         return timetable;
     }
-}
\ No newline at end of file
+}
+
+// Memory Benchmark
+// Run with: java -cp src TimetableMemoryBenchmark [entries]
+class TimetableMemoryBenchmark {
+    public static void main(String[] args) throws InterruptedException {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int hoursPerWeek = Timeslot.teachingSlots().size();
+        int entities = entries / hoursPerWeek + 1;
+
+        List<Teacher> teachers = new ArrayList<>();
+        List<Classroom> classrooms = new ArrayList<>();
+        for (int i = 0; i < entities; i++) {
+            teachers.add(new Teacher("T" + i, Collections.singletonList("Math"), 8));
+            classrooms.add(new Classroom("R" + i, false, 30));
+        }
+        List<Subject> subjects = Collections.singletonList(new Subject("Math", hoursPerWeek, false));
+        List<Timeslot> slots = Timeslot.teachingSlots();
+
+        // Object model: every hour in one Timetable, each entry with its own Timeslot
+        long base = usedMemory();
+        Timetable timetable = new Timetable();
+        for (int i = 0; i < entries; i++) {
+            Timeslot slot = slots.get(i % hoursPerWeek);
+            timetable.addEntry(teachers.get(i / hoursPerWeek), classrooms.get(i / hoursPerWeek),
+                    new Timeslot(slot.getDay(), slot.getPeriod()), subjects.get(0));
+        }
+        long objectBytes = usedMemory() - base;
+        int objectEntries = timetable.getEntries().size();
+        timetable = null;
+
+        // Columnar model: the same hours as rows of one CompactTimetable
+        base = usedMemory();
+        CompactTimetable compact = new CompactTimetable(teachers, subjects, classrooms);
+        for (int i = 0; i < entries; i++) {
+            compact.add(i / hoursPerWeek, i / hoursPerWeek, 0, slots.get(i % hoursPerWeek).index());
+        }
+        long compactBytes = usedMemory() - base;
+
+        // Forks are kept reachable through their sizes so the copies cannot be optimized away
+        int forks = 100;
+        long forkedRows = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < forks; i++) {
+            forkedRows += compact.fork().size();
+        }
+        long forkNanos = (System.nanoTime() - start) / forks;
+
+        System.out.printf("Entries:          %,d%n", entries);
+        System.out.printf("Timetable:        %,d bytes (%.1f bytes/entry)%n", objectBytes, (double) objectBytes / objectEntries);
+        System.out.printf("CompactTimetable: %,d bytes (%.1f bytes/entry)%n", compactBytes, (double) compactBytes / compact.size());
+        System.out.printf("Fork:             %,d ns (%,d rows forked)%n", forkNanos, forkedRows);
+    }
+
+    private static long usedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}